@@ -0,0 +1,77 @@
+package com.learnwiremock.service;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.learnwiremock.constants.MoviesAppConstants;
+import com.learnwiremock.dto.Movie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+/**
+ * Latency of the very first {@link MoviesRestClient} request in a fresh JVM, with and
+ * without {@link MoviesRestClient#warmUp(int)}. Every fork measures exactly one call,
+ * so JVM-wide initialization is not shared between the two cases.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class FirstRequestBenchmark {
+
+    private static final String MOVIES_JSON =
+            "[{\"movie_id\":1,\"name\":\"Batman Begins\",\"year\":2005,\"cast\":\"Christian Bale\",\"release_date\":\"2005-06-15\"}]";
+
+    @Param({"false", "true"})
+    boolean warmUp;
+
+    WireMockServer wireMockServer;
+
+    MoviesRestClient moviesRestClient;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        wireMockServer = new WireMockServer(wireMockConfig().dynamicPort());
+        wireMockServer.start();
+        wireMockServer.stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBody(MOVIES_JSON)));
+
+        moviesRestClient = new MoviesRestClient(
+                WebClient.create(String.format("http://localhost:%s", wireMockServer.port())));
+        if (warmUp) {
+            moviesRestClient.warmUp(4);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wireMockServer.stop();
+    }
+
+    @Benchmark
+    public List<Movie> firstRequest() {
+        return moviesRestClient.retriveAllMovies();
+    }
+}
@@ -0,0 +1,56 @@
+package com.learnwiremock.service;
+
+import com.learnwiremock.constants.MoviesAppConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-call cost of building a by-name request URI the old way
+ * (UriComponentsBuilder to a String, then WebClient's DefaultUriBuilderFactory
+ * parsing it again) against the pre-compiled {@link QueryUriTemplate}.
+ * Run with {@code ./gradlew jmh} and compare {@code gc.alloc.rate.norm} (bytes per call).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueryUriBenchmark {
+
+    private static final String BASE_URL = "http://localhost:8081";
+
+    @Param({"Avengers", "Toy Story"})
+    String movieName;
+
+    DefaultUriBuilderFactory uriBuilderFactory = new DefaultUriBuilderFactory(BASE_URL);
+
+    QueryUriTemplate movieByName = new QueryUriTemplate(MoviesAppConstants.MOVIE_BY_NAME_QUERY_PARAM_V1, "movie_name");
+
+    @Benchmark
+    public URI uriComponentsBuilder() {
+        String retrieveByNameUri = UriComponentsBuilder.fromUriString(MoviesAppConstants.MOVIE_BY_NAME_QUERY_PARAM_V1)
+                .queryParam("movie_name", movieName)
+                .buildAndExpand()
+                .toUriString();
+        return uriBuilderFactory.expand(retrieveByNameUri);
+    }
+
+    @Benchmark
+    public URI queryUriTemplate() {
+        return movieByName.expand(BASE_URL, movieName);
+    }
+}
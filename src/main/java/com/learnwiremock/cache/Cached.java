@@ -0,0 +1,33 @@
+package com.learnwiremock.cache;
+
+/**
+ * A response returned by {@link ServeStaleCache}, flagged with whether it is a stale
+ * copy served because the movie service failed or did not answer in time.
+ */
+public class Cached<T> {
+
+    private final T value;
+
+    private final boolean stale;
+
+    private Cached(T value, boolean stale) {
+        this.value = value;
+        this.stale = stale;
+    }
+
+    public static <T> Cached<T> fresh(T value) {
+        return new Cached<>(value, false);
+    }
+
+    public static <T> Cached<T> stale(T value) {
+        return new Cached<>(value, true);
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+}
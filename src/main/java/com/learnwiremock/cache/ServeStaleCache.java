@@ -0,0 +1,179 @@
+package com.learnwiremock.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps the last good response per request URI so that reads can be served while
+ * the movie service is slow or down.
+ * <ul>
+ * <li>Younger than the soft TTL: the cached value is returned immediately and a
+ * single background request refreshes it.</li>
+ * <li>Older than the soft TTL: the request is made synchronously, bounded by the
+ * request timeout. If it fails with a 5xx, a timeout or a connection error, the
+ * cached value is returned flagged as stale as long as it is younger than the
+ * hard TTL.</li>
+ * </ul>
+ * 4xx responses are never masked; they also drop the cached value. At most {@code maxEntries} values are kept; the oldest are evicted first and
+ * values past the hard TTL are dropped. Callers get their own copies, made with the
+ * copy function passed to {@link #get}, so mutating a result does not change the cache.
+ */
+@Slf4j
+public class ServeStaleCache {
+
+    // insertion order is store order, so the head is always the oldest entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong staleServedCount = new AtomicLong();
+
+    private final long softTtlNanos;
+
+    private final long hardTtlNanos;
+
+    private final Duration requestTimeout;
+
+    private final int maxEntries;
+
+    public ServeStaleCache(Duration softTtl, Duration hardTtl, Duration requestTimeout, int maxEntries) {
+        if (hardTtl.compareTo(softTtl) < 0) {
+            throw new IllegalArgumentException("hardTtl must not be shorter than softTtl");
+        }
+        if (requestTimeout == null) {
+            throw new IllegalArgumentException("requestTimeout is required");
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.softTtlNanos = softTtl.toNanos();
+        this.hardTtlNanos = hardTtl.toNanos();
+        this.requestTimeout = requestTimeout;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Number of times a cached value was returned because the request for it failed.
+     */
+    public long getStaleServedCount() {
+        return staleServedCount.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Cached<T> get(String key, Mono<T> request, UnaryOperator<T> copy) {
+        long now = System.nanoTime();
+        Entry entry = lookup(key, now);
+
+        if (entry != null && now - entry.storedAtNanos < softTtlNanos) {
+            refreshInBackground(key, request, copy);
+            return Cached.fresh(copy.apply((T) entry.value));
+        }
+
+        try {
+            T value = request.timeout(requestTimeout).block();
+            store(key, value, copy);
+            return Cached.fresh(value);
+        } catch (RuntimeException e) {
+            if (entry == null) {
+                throw e;
+            }
+            long age = System.nanoTime() - entry.storedAtNanos;
+            if (!isServeStale(e) || age >= hardTtlNanos) {
+                remove(key, entry);
+                throw e;
+            }
+            staleServedCount.incrementAndGet();
+            log.warn("Serving stale response for {} ({} ms old) after {}", key,
+                    Duration.ofNanos(age).toMillis(), e.toString());
+            return Cached.stale(copy.apply((T) entry.value));
+        }
+    }
+
+    private <T> void refreshInBackground(String key, Mono<T> request, UnaryOperator<T> copy) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        request.timeout(requestTimeout)
+                .doFinally(signal -> refreshing.remove(key))
+                .subscribe(value -> store(key, value, copy), e -> {
+                    if (!isServeStale(e)) {
+                        synchronized (entries) {
+                            entries.remove(key);
+                        }
+                    }
+                    log.warn("Background refresh of {} failed: {}", key, e.toString());
+                });
+    }
+
+    private Entry lookup(String key, long now) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.storedAtNanos >= hardTtlNanos) {
+                entries.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    private <T> void store(String key, T value, UnaryOperator<T> copy) {
+        if (value == null) {
+            return;
+        }
+        Entry entry = new Entry(copy.apply(value), System.nanoTime());
+        synchronized (entries) {
+            // re-insert so the entry moves to the tail
+            entries.remove(key);
+            entries.put(key, entry);
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Entry oldest = it.next().getValue();
+                if (entries.size() <= maxEntries && entry.storedAtNanos - oldest.storedAtNanos < hardTtlNanos) {
+                    break;
+                }
+                it.remove();
+            }
+        }
+    }
+
+    private static boolean isServeStale(Throwable e) {
+        if (e instanceof WebClientResponseException) {
+            return ((WebClientResponseException) e).getRawStatusCode() >= 500;
+        }
+        return true;
+    }
+
+    private static class Entry {
+
+        private final Object value;
+
+        private final long storedAtNanos;
+
+        private Entry(Object value, long storedAtNanos) {
+            this.value = value;
+            this.storedAtNanos = storedAtNanos;
+        }
+    }
+}
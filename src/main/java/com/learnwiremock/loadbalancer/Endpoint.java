@@ -0,0 +1,232 @@
+package com.learnwiremock.loadbalancer;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One movie-service replica together with the health and load statistics the
+ * {@link LoadBalancingExchangeFilter} uses to pick between replicas.
+ */
+public class Endpoint {
+
+    private static final double EWMA_ALPHA = 0.3;
+
+    private static final double EWMA_DECAY_NANOS = 5_000_000_000.0;
+
+    // keeps the outstanding count meaningful once an idle replica's estimate has decayed
+    private static final double LATENCY_FLOOR_MILLIS = 1.0;
+
+    // latency charged for a failed request, so a replica that fails fast does not look cheap
+    static final long FAILURE_LATENCY_PENALTY_NANOS = 1_000_000_000L;
+
+    private final URI baseUri;
+
+    private final String baseUrl;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private volatile double ewmaLatencyMillis;
+
+    private volatile boolean latencyObserved;
+
+    private volatile long lastLatencyNanos;
+
+    private int consecutiveFailures;
+
+    private boolean probeInFlight;
+
+    private long generation;
+
+    private int consecutiveEjections;
+
+    private volatile long ejectedUntilNanos;
+
+    private volatile boolean ejected;
+
+    public Endpoint(URI baseUri) {
+        this.baseUri = baseUri;
+        String url = baseUri.toString();
+        this.baseUrl = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    public URI getBaseUri() {
+        return baseUri;
+    }
+
+    /**
+     * The base URI as a string without a trailing slash, ready to have a request path appended.
+     */
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public double getEwmaLatencyMillis() {
+        return ewmaLatencyMillis;
+    }
+
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    /**
+     * Load score used by power-of-two-choices: expected latency scaled by the
+     * number of requests already queued on this replica. The latency estimate
+     * decays while a replica is idle so a single slow answer is not held against
+     * it forever, but never below a small floor, so queued requests always count.
+     */
+    double cost(long nowNanos) {
+        return Math.max(decayedLatency(nowNanos), LATENCY_FLOOR_MILLIS) * (outstanding.get() + 1);
+    }
+
+    /**
+     * Whether this replica has a latency estimate yet. Replicas without one are
+     * compared on outstanding requests alone.
+     */
+    boolean hasLatencyEstimate() {
+        return latencyObserved;
+    }
+
+    boolean isAvailable(long nowNanos) {
+        return !ejected || nowNanos - ejectedUntilNanos >= 0;
+    }
+
+    /**
+     * Claims a slot for a request, or returns null if the replica is ejected. Once the
+     * ejection window of an ejected replica has passed, exactly one trial request is
+     * let through to re-probe it.
+     */
+    Permit tryAcquire(long nowNanos) {
+        synchronized (this) {
+            boolean probe = false;
+            if (ejected) {
+                if (nowNanos - ejectedUntilNanos < 0 || probeInFlight) {
+                    return null;
+                }
+                probeInFlight = true;
+                probe = true;
+            }
+            outstanding.incrementAndGet();
+            return new Permit(this, generation, probe);
+        }
+    }
+
+    /**
+     * Claims a slot regardless of health, used when every replica is ejected. The
+     * outcome of such a request does not change the replica's health.
+     */
+    Permit forceAcquire() {
+        outstanding.incrementAndGet();
+        return new Permit(this, -1, false);
+    }
+
+    synchronized void onSuccess(Permit permit, long latencyNanos) {
+        outstanding.decrementAndGet();
+        recordLatency(latencyNanos);
+        if (permit.probe) {
+            probeInFlight = false;
+            ejected = false;
+            consecutiveEjections = 0;
+            consecutiveFailures = 0;
+            generation++;
+        } else if (!ejected && permit.generation == generation) {
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * Records a failed request. Only failures of requests issued while the replica was
+     * healthy count towards ejection, and only a failed probe doubles the back-off;
+     * late failures from before an ejection and fail-open requests are ignored. The
+     * latency estimate is charged at least {@link #FAILURE_LATENCY_PENALTY_NANOS}.
+     */
+    synchronized void onFailure(Permit permit, long latencyNanos, long nowNanos, int failureThreshold,
+                                long baseEjectionNanos, long maxEjectionNanos) {
+        outstanding.decrementAndGet();
+        recordLatency(Math.max(latencyNanos, FAILURE_LATENCY_PENALTY_NANOS));
+        if (permit.probe) {
+            probeInFlight = false;
+            eject(nowNanos, baseEjectionNanos, maxEjectionNanos);
+        } else if (!ejected && permit.generation == generation && ++consecutiveFailures >= failureThreshold) {
+            consecutiveEjections = 0;
+            eject(nowNanos, baseEjectionNanos, maxEjectionNanos);
+        }
+    }
+
+    /**
+     * Records a request the caller gave up on. The answer would have taken at least
+     * {@code latencyNanos}, so the latency estimate is only ever raised by it.
+     */
+    synchronized void onCancel(Permit permit, long latencyNanos) {
+        outstanding.decrementAndGet();
+        if (latencyNanos / 1_000_000.0 > decayedLatency(System.nanoTime())) {
+            recordLatency(latencyNanos);
+        }
+        if (permit.probe) {
+            probeInFlight = false;
+        }
+    }
+
+    private void eject(long nowNanos, long baseEjectionNanos, long maxEjectionNanos) {
+        long ejectionNanos = Math.min(maxEjectionNanos, baseEjectionNanos << Math.min(consecutiveEjections, 16));
+        consecutiveEjections++;
+        ejectedUntilNanos = nowNanos + ejectionNanos;
+        ejected = true;
+        generation++;
+    }
+
+    long getEjectedUntilNanos() {
+        return ejectedUntilNanos;
+    }
+
+    private double decayedLatency(long nowNanos) {
+        return ewmaLatencyMillis * Math.exp(-Math.max(0L, nowNanos - lastLatencyNanos) / EWMA_DECAY_NANOS);
+    }
+
+    private void recordLatency(long latencyNanos) {
+        long now = System.nanoTime();
+        double latencyMillis = latencyNanos / 1_000_000.0;
+        if (latencyObserved) {
+            ewmaLatencyMillis = EWMA_ALPHA * latencyMillis + (1 - EWMA_ALPHA) * decayedLatency(now);
+        } else {
+            ewmaLatencyMillis = latencyMillis;
+            latencyObserved = true;
+        }
+        lastLatencyNanos = now;
+    }
+
+    @Override
+    public String toString() {
+        return baseUri.toString();
+    }
+
+    /**
+     * A slot claimed on an endpoint, remembering whether it is the re-admission probe and
+     * which ejection generation it was issued in.
+     */
+    static class Permit {
+
+        private final Endpoint endpoint;
+
+        private final long generation;
+
+        private final boolean probe;
+
+        private Permit(Endpoint endpoint, long generation, boolean probe) {
+            this.endpoint = endpoint;
+            this.generation = generation;
+            this.probe = probe;
+        }
+
+        Endpoint getEndpoint() {
+            return endpoint;
+        }
+
+        boolean isProbe() {
+            return probe;
+        }
+    }
+}
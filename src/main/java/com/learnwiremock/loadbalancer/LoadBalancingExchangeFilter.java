@@ -0,0 +1,214 @@
+package com.learnwiremock.loadbalancer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Client-side load balancer for a set of movie-service replicas.
+ * <p>
+ * Every request is routed to one of the configured base URLs using
+ * power-of-two-choices over outstanding requests weighted by EWMA latency.
+ * Replicas that fail to connect or answer with a 5xx are ejected for a back-off
+ * window, after which a single trial request re-probes them. A request the caller
+ * cancels after the slow-cancel threshold, e.g. on a timeout, counts as a failure.
+ * <p>
+ * The {@link org.springframework.web.reactive.function.client.WebClient} using this
+ * filter must not have a base URL of its own; request paths are resolved against the
+ * selected replica.
+ */
+@Slf4j
+public class LoadBalancingExchangeFilter implements ExchangeFilterFunction {
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final Duration DEFAULT_BASE_EJECTION = Duration.ofSeconds(10);
+    public static final Duration DEFAULT_MAX_EJECTION = Duration.ofMinutes(2);
+    public static final Duration DEFAULT_SLOW_CANCEL_THRESHOLD = Duration.ofSeconds(1);
+
+    private final List<Endpoint> endpoints;
+    private final int failureThreshold;
+    private final long baseEjectionNanos;
+    private final long maxEjectionNanos;
+    private final long slowCancelNanos;
+
+    public LoadBalancingExchangeFilter(List<String> baseUrls) {
+        this(baseUrls, DEFAULT_FAILURE_THRESHOLD, DEFAULT_BASE_EJECTION, DEFAULT_MAX_EJECTION);
+    }
+
+    public LoadBalancingExchangeFilter(List<String> baseUrls, int failureThreshold,
+                                       Duration baseEjection, Duration maxEjection) {
+        this(baseUrls, failureThreshold, baseEjection, maxEjection, DEFAULT_SLOW_CANCEL_THRESHOLD);
+    }
+
+    public LoadBalancingExchangeFilter(List<String> baseUrls, int failureThreshold,
+                                       Duration baseEjection, Duration maxEjection, Duration slowCancelThreshold) {
+        if (baseUrls == null || baseUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one base URL is required");
+        }
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1");
+        }
+        List<Endpoint> list = new ArrayList<>(baseUrls.size());
+        for (String baseUrl : baseUrls) {
+            list.add(new Endpoint(URI.create(baseUrl)));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+        this.failureThreshold = failureThreshold;
+        this.baseEjectionNanos = baseEjection.toNanos();
+        this.maxEjectionNanos = maxEjection.toNanos();
+        this.slowCancelNanos = slowCancelThreshold.toNanos();
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            Endpoint.Permit permit = choose();
+            Endpoint endpoint = permit.getEndpoint();
+            long start = System.nanoTime();
+            AtomicBoolean released = new AtomicBoolean();
+            ClientRequest routed = ClientRequest.from(request)
+                    .url(resolve(endpoint, request.url()))
+                    .build();
+
+            return next.exchange(routed)
+                    .doOnSuccess(response -> {
+                        if (released.compareAndSet(false, true)) {
+                            long now = System.nanoTime();
+                            if (response != null && response.rawStatusCode() < 500) {
+                                endpoint.onSuccess(permit, now - start);
+                            } else {
+                                recordFailure(permit, start, now);
+                            }
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (released.compareAndSet(false, true)) {
+                            log.warn("Request to {} failed: {}", endpoint, e.toString());
+                            recordFailure(permit, start, System.nanoTime());
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (released.compareAndSet(false, true)) {
+                            long now = System.nanoTime();
+                            if (now - start >= slowCancelNanos) {
+                                log.warn("Request to {} cancelled after {} ms", endpoint, (now - start) / 1_000_000);
+                                recordFailure(permit, start, now);
+                            } else {
+                                endpoint.onCancel(permit, now - start);
+                            }
+                        }
+                    });
+        });
+    }
+
+    Endpoint.Permit choose() {
+        long now = System.nanoTime();
+        List<Endpoint> available = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            // an ejected replica whose back-off has elapsed gets the next request as its probe
+            if (endpoint.isEjected()) {
+                Endpoint.Permit probe = endpoint.tryAcquire(now);
+                if (probe != null) {
+                    log.info("Re-probing {}", endpoint);
+                    return probe;
+                }
+            }
+            if (endpoint.isAvailable(now)) {
+                available.add(endpoint);
+            }
+        }
+
+        while (!available.isEmpty()) {
+            Endpoint candidate = pickTwo(available, now);
+            Endpoint.Permit permit = candidate.tryAcquire(now);
+            if (permit != null) {
+                return permit;
+            }
+            available.remove(candidate);
+        }
+
+        // every replica is ejected: fail open towards the one closest to re-admission
+        Endpoint fallback = endpoints.get(0);
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.getEjectedUntilNanos() - fallback.getEjectedUntilNanos() < 0) {
+                fallback = endpoint;
+            }
+        }
+        return fallback.forceAcquire();
+    }
+
+    private Endpoint pickTwo(List<Endpoint> available, long now) {
+        int size = available.size();
+        if (size == 1) {
+            return available.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        return cheaper(available.get(first), available.get(second), now);
+    }
+
+    /**
+     * Compares two replicas on latency-weighted load. Until both have a latency estimate
+     * they are compared on outstanding requests alone, preferring the unsampled one on a
+     * tie, so a burst is spread instead of piling onto a replica nobody has timed yet.
+     */
+    private static Endpoint cheaper(Endpoint a, Endpoint b, long now) {
+        if (!a.hasLatencyEstimate() || !b.hasLatencyEstimate()) {
+            int diff = a.getOutstanding() - b.getOutstanding();
+            if (diff != 0) {
+                return diff < 0 ? a : b;
+            }
+            return a.hasLatencyEstimate() ? b : a;
+        }
+        return a.cost(now) <= b.cost(now) ? a : b;
+    }
+
+    private void recordFailure(Endpoint.Permit permit, long start, long now) {
+        Endpoint endpoint = permit.getEndpoint();
+        boolean wasEjected = endpoint.isEjected();
+        endpoint.onFailure(permit, now - start, now, failureThreshold, baseEjectionNanos, maxEjectionNanos);
+        if (!wasEjected && endpoint.isEjected()) {
+            log.warn("Ejecting {} from the load balancer", endpoint);
+        }
+    }
+
+    /**
+     * Joins the replica's base URL with the already-encoded path and query of the request,
+     * so URIs built by {@code QueryUriTemplate} are not re-parsed by a builder.
+     */
+    private static URI resolve(Endpoint endpoint, URI requestUri) {
+        String rawPath = requestUri.getRawPath();
+        String rawQuery = requestUri.getRawQuery();
+        StringBuilder sb = new StringBuilder(endpoint.getBaseUrl().length() + 64)
+                .append(endpoint.getBaseUrl());
+        if (rawPath != null && !rawPath.isEmpty()) {
+            if (rawPath.charAt(0) != '/') {
+                sb.append('/');
+            }
+            sb.append(rawPath);
+        }
+        if (rawQuery != null) {
+            sb.append('?').append(rawQuery);
+        }
+        return URI.create(sb.toString());
+    }
+}
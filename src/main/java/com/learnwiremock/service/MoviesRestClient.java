@@ -1,33 +1,162 @@
 package com.learnwiremock.service;
 
+import com.learnwiremock.cache.Cached;
+import com.learnwiremock.cache.ServeStaleCache;
 import com.learnwiremock.constants.MoviesAppConstants;
 import com.learnwiremock.dto.Movie;
 import com.learnwiremock.exception.MovieErrorResponse;
+import com.learnwiremock.loadbalancer.LoadBalancingExchangeFilter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
-import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 @Slf4j
 public class MoviesRestClient {
 
+    private static final Duration WARM_UP_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final String WARM_UP_MOVIES_JSON =
+            "[{\"movie_id\":1,\"name\":\"Batman Begins\",\"year\":2005,\"cast\":\"Christian Bale\",\"release_date\":\"2005-06-15\"}]";
+
+    private static final QueryUriTemplate MOVIE_BY_NAME_URI =
+            new QueryUriTemplate(MoviesAppConstants.MOVIE_BY_NAME_QUERY_PARAM_V1, "movie_name");
+
+    private static final QueryUriTemplate MOVIE_BY_YEAR_URI =
+            new QueryUriTemplate(MoviesAppConstants.MOVIE_BY_YEAR_QUERY_PARAM_V1, "year");
+
     private WebClient webClient;
 
+    private volatile String baseUri;
+
+    private ServeStaleCache serveStaleCache;
+
     public MoviesRestClient(WebClient webClient) {
         this.webClient = webClient;
     }
 
+    /**
+     * Creates a client whose GET operations go through {@code serveStaleCache}, returning the
+     * last good response while the movie service is slow or failing. The {@code ...Cached}
+     * variants of the reads tell whether a response was stale. Entries are keyed on the
+     * absolute request URI, so one cache can be shared by clients of different services.
+     */
+    public MoviesRestClient(WebClient webClient, ServeStaleCache serveStaleCache) {
+        this.webClient = webClient;
+        this.serveStaleCache = serveStaleCache;
+    }
+
+    public MoviesRestClient(List<String> baseUrls) {
+        this(WebClient.builder().filter(new LoadBalancingExchangeFilter(baseUrls)).build());
+    }
+
+    public void warmUp(int connections) {
+        warmUp(connections, MoviesAppConstants.GET_ALL_MOVIES_V1);
+    }
+
+    /**
+     * Initializes what the first real request would otherwise pay for lazily. Jackson,
+     * its {@link LocalDate} support and the codec classes are loaded JVM-wide by a local
+     * round trip of a canned {@link Movie}. When {@code warmUpPath} is not null, that
+     * many concurrent GETs to it resolve the host, start the event loop and leave
+     * {@code connections} pooled connections. Successful JSON responses are decoded as
+     * {@code List<Movie>} through this client's own codecs, so a path returning movies
+     * also primes the (de)serializer caches real requests use; any other body, such as a
+     * plain-text health check, is drained so the connection goes back to the pool.
+     * Warm-up is best effort and never throws.
+     */
+    public void warmUp(int connections, String warmUpPath) {
+        long start = System.nanoTime();
+        try {
+            primeCodecs();
+        } catch (Exception e) {
+            log.warn("Exception while priming the movie codecs and the message is {}", e.toString());
+        }
+
+        if (warmUpPath != null && connections > 0) {
+            try {
+                Flux.range(0, connections)
+                        .flatMap(i -> webClient.get().uri(warmUpPath)
+                                .exchange()
+                                .flatMap(response -> response.rawStatusCode() / 100 == 2 && isJson(response)
+                                        ? response.bodyToFlux(Movie.class).then()
+                                        : response.bodyToMono(Void.class))
+                                .onErrorResume(e -> {
+                                    log.warn("Warm-up request to {} failed and the message is {}", warmUpPath, e.toString());
+                                    return Mono.empty();
+                                }), connections)
+                        .then()
+                        .timeout(WARM_UP_TIMEOUT, Mono.empty())
+                        .onErrorResume(e -> {
+                            log.warn("Warm-up of {} failed and the message is {}", warmUpPath, e.toString());
+                            return Mono.empty();
+                        })
+                        .block();
+            } catch (Exception e) {
+                log.warn("Warm-up of {} failed and the message is {}", warmUpPath, e.toString());
+            }
+        }
+        log.info("MoviesRestClient warmed up in {} ms", Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    private static boolean isJson(ClientResponse response) {
+        return response.headers().contentType()
+                .map(MediaType.APPLICATION_JSON::isCompatibleWith)
+                .orElse(false);
+    }
+
+    private void primeCodecs() {
+        List<Movie> movies = ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(WARM_UP_MOVIES_JSON)
+                .build()
+                .bodyToFlux(Movie.class)
+                .collectList()
+                .block();
+
+        new Jackson2JsonEncoder()
+                .encode(Mono.just(movies.get(0)), new DefaultDataBufferFactory(),
+                        ResolvableType.forClass(Movie.class), MediaType.APPLICATION_JSON, Collections.emptyMap())
+                .doOnNext(DataBufferUtils::release)
+                .blockLast();
+    }
+
 
     public List<Movie> retriveAllMovies() {
+        return retriveAllMoviesCached().getValue();
+    }
+
+    /**
+     * Same as {@link #retriveAllMovies()}, but tells whether the movies were served stale by
+     * the serve-stale cache.
+     */
+    public Cached<List<Movie>> retriveAllMoviesCached() {
         try{
             // http://localhost:8081/movieservice/v1/allMovies
-            return webClient.get().uri(MoviesAppConstants.GET_ALL_MOVIES_V1)
+            return block(webClient.get().uri(MoviesAppConstants.GET_ALL_MOVIES_V1)
                     .retrieve()
                     .bodyToFlux(Movie.class)
-                    .collectList()
-                    .block();
+                    .collectList(), () -> absoluteUri(MoviesAppConstants.GET_ALL_MOVIES_V1), MoviesRestClient::copyMovies);
         }
         catch (WebClientResponseException e) {
             log.error("WebClientResponseException in retriveMovieById. Status code is {} and the message is {} ",
@@ -42,66 +171,81 @@ public class MoviesRestClient {
     }
 
     public Movie retriveMovieById(Integer movieId) {
+        return retriveMovieByIdCached(movieId).getValue();
+    }
+
+    /**
+     * Same as {@link #retriveMovieById(Integer)}, but tells whether the movie was served stale
+     * by the serve-stale cache.
+     */
+    public Cached<Movie> retriveMovieByIdCached(Integer movieId) {
 
         // http://localhost:8081/movieservice/v1/movie/1
         try {
-            return webClient.get().uri(MoviesAppConstants.MOVIE_BY_ID_PATH_PARAM_V1, movieId)
+            return block(webClient.get().uri(MoviesAppConstants.MOVIE_BY_ID_PATH_PARAM_V1, movieId)
                     .retrieve()
-                    .bodyToMono(Movie.class)
-                    .block();
+                    .bodyToMono(Movie.class),
+                    () -> absoluteUri(MoviesAppConstants.MOVIE_BY_ID_PATH_PARAM_V1.replace("{id}", String.valueOf(movieId))),
+                    MoviesRestClient::copyMovie);
         } catch (WebClientResponseException e) {
             log.error("WebClientResponseException in retriveMovieById. Status code is {} and the message is {} ",
                     e.getStatusCode(), e.getResponseBodyAsString());
             throw new MovieErrorResponse(e.getStatusText(), e);
         } catch (Exception e) {
             log.error("Exception in retrieveMovieById and the message is {}", e);
-            throw new MovieErrorResponse((WebClientResponseException) e);
+            throw new MovieErrorResponse(e);
         }
     }
 
     public List<Movie> retrieveMovieByName(String name) {
-        // http://localhost:8081/movieservice/v1/movieName?movie_name=Batman%20Begins
+        return retrieveMovieByNameCached(name).getValue();
+    }
 
-        String retrieveByNameUri = UriComponentsBuilder.fromUriString(MoviesAppConstants.MOVIE_BY_NAME_QUERY_PARAM_V1)
-                .queryParam("movie_name", name)
-                .buildAndExpand()
-                .toUriString();
+    /**
+     * Same as {@link #retrieveMovieByName(String)}, but tells whether the movies were served
+     * stale by the serve-stale cache.
+     */
+    public Cached<List<Movie>> retrieveMovieByNameCached(String name) {
+        // http://localhost:8081/movieservice/v1/movieName?movie_name=Batman%20Begins
         try {
-            return webClient.get().uri(retrieveByNameUri)
+            URI uri = queryUri(MOVIE_BY_NAME_URI, name);
+            return block(webClient.get().uri(uri)
                     .retrieve()
                     .bodyToFlux(Movie.class)
-                    .collectList()
-                    .block();
+                    .collectList(), uri::toString, MoviesRestClient::copyMovies);
         } catch (WebClientResponseException e) {
             log.error("WebClientResponseException in retriveMovieByName. Status code is {} and the message is {} ",
                     e.getStatusCode(), e.getResponseBodyAsString());
             throw new MovieErrorResponse(e.getStatusText(), e);
         } catch (Exception e) {
             log.error("Exception in retrieveMovieByName and the message is {}", e);
-            throw new MovieErrorResponse((WebClientResponseException) e);
+            throw new MovieErrorResponse(e);
         }
     }
 
     public List<Movie> retrieveMovieByYear(Integer movieYear) {
-        // http://localhost:8081/movieservice/v1/movieYear?year=1800
+        return retrieveMovieByYearCached(movieYear).getValue();
+    }
 
-        String retrieveByYearUri = UriComponentsBuilder.fromUriString(MoviesAppConstants.MOVIE_BY_YEAR_QUERY_PARAM_V1)
-                .queryParam("year", movieYear)
-                .buildAndExpand()
-                .toUriString();
+    /**
+     * Same as {@link #retrieveMovieByYear(Integer)}, but tells whether the movies were served
+     * stale by the serve-stale cache.
+     */
+    public Cached<List<Movie>> retrieveMovieByYearCached(Integer movieYear) {
+        // http://localhost:8081/movieservice/v1/movieYear?year=1800
         try {
-            return webClient.get().uri(retrieveByYearUri)
+            URI uri = queryUri(MOVIE_BY_YEAR_URI, movieYear);
+            return block(webClient.get().uri(uri)
                     .retrieve()
                     .bodyToFlux(Movie.class)
-                    .collectList()
-                    .block();
+                    .collectList(), uri::toString, MoviesRestClient::copyMovies);
         } catch (WebClientResponseException e) {
             log.error("WebClientResponseException in retriveMovieByYear. Status code is {} and the message is {} ",
                     e.getStatusCode(), e.getResponseBodyAsString());
             throw new MovieErrorResponse(e.getStatusText(), e);
         } catch (Exception e) {
             log.error("Exception in retrieveMovieByYear and the message is {}", e);
-            throw new MovieErrorResponse((WebClientResponseException) e);
+            throw new MovieErrorResponse(e);
         }
     }
 
@@ -157,11 +301,7 @@ public class MoviesRestClient {
 
     public String deleteMovieByName(String movieName) {
         try{
-            String deleteMovieByNameURI = UriComponentsBuilder.fromUriString(MoviesAppConstants.MOVIE_BY_NAME_QUERY_PARAM_V1)
-                            .queryParam("movie_name", movieName)
-                                    .buildAndExpand().toUriString();
-
-            webClient.delete().uri(deleteMovieByNameURI).retrieve()
+            webClient.delete().uri(queryUri(MOVIE_BY_NAME_URI, movieName)).retrieve()
                     .bodyToMono(Void.class).block();
 
         }catch (WebClientResponseException e) {
@@ -175,4 +315,60 @@ public class MoviesRestClient {
         return "Movie Deleted Successfully";
     }
 
+    private <T> Cached<T> block(Mono<T> request, Supplier<String> cacheKey, UnaryOperator<T> copy) {
+        if (serveStaleCache == null) {
+            return Cached.fresh(request.block());
+        }
+        return serveStaleCache.get(cacheKey.get(), request, copy);
+    }
+
+    private static Movie copyMovie(Movie movie) {
+        return new Movie(movie.getMovie_id(), movie.getName(), movie.getCast(), movie.getYear(), movie.getRelease_date());
+    }
+
+    private static List<Movie> copyMovies(List<Movie> movies) {
+        List<Movie> copy = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            copy.add(copyMovie(movie));
+        }
+        return copy;
+    }
+
+    /**
+     * Builds a ready {@link URI} from a pre-compiled template, so WebClient does not parse it again.
+     */
+    private URI queryUri(QueryUriTemplate template, Object value) {
+        return template.expand(baseUri(), value);
+    }
+
+    /**
+     * The serve-stale cache key of a path: the path resolved against the WebClient's base URL.
+     */
+    private String absoluteUri(String path) {
+        return baseUri() + path;
+    }
+
+    private String baseUri() {
+        String base = baseUri;
+        if (base == null) {
+            base = resolveBaseUri();
+            baseUri = base;
+        }
+        return base;
+    }
+
+    /**
+     * Captures the base URL configured on the WebClient from its {@link UriBuilder}. WebClient
+     * applies the URI function right away; the request spec is discarded and nothing is sent.
+     */
+    private String resolveBaseUri() {
+        AtomicReference<URI> base = new AtomicReference<>();
+        webClient.get().uri(uriBuilder -> {
+            base.set(uriBuilder.build());
+            return base.get();
+        });
+        String resolved = base.get().toString();
+        return resolved.endsWith("/") ? resolved.substring(0, resolved.length() - 1) : resolved;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.learnwiremock.service;
+
+import java.net.URI;
+
+/**
+ * A request path with a single query parameter, compiled once so that building a
+ * request URI only has to percent-encode the parameter value.
+ * <p>
+ * Values are encoded strictly, like {@code UriUtils.encode}: everything except the
+ * unreserved characters {@code A-Z a-z 0-9 - . _ ~} is written as UTF-8 {@code %XX}
+ * octets, so reserved characters such as {@code & = +} can't change the meaning of
+ * the query.
+ */
+public class QueryUriTemplate {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final boolean[] ALLOWED = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            ALLOWED[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            ALLOWED[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            ALLOWED[c] = true;
+        }
+        for (char c : "-._~".toCharArray()) {
+            ALLOWED[c] = true;
+        }
+    }
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    private final String prefix;
+
+    private final String nameOnly;
+
+    public QueryUriTemplate(String path, String queryParamName) {
+        StringBuilder sb = new StringBuilder(path.length() + queryParamName.length() + 2);
+        sb.append(path).append('?');
+        encode(queryParamName, sb);
+        this.nameOnly = sb.toString();
+        this.prefix = nameOnly + '=';
+    }
+
+    /**
+     * Expands the template against {@code baseUri}, which must not end with a slash;
+     * an empty base yields a relative URI.
+     */
+    public URI expand(String baseUri, Object value) {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        sb.append(baseUri);
+        if (value == null) {
+            sb.append(nameOnly);
+        } else {
+            sb.append(prefix);
+            encode(value.toString(), sb);
+        }
+        return URI.create(sb.toString());
+    }
+
+    static void encode(String source, StringBuilder sb) {
+        int length = source.length();
+        for (int i = 0; i < length; i++) {
+            char c = source.charAt(i);
+            if (c < 128 && ALLOWED[c]) {
+                sb.append(c);
+            } else if (c < 128) {
+                appendOctet(c, sb);
+            } else {
+                int codePoint = source.codePointAt(i);
+                if (Character.isSupplementaryCodePoint(codePoint)) {
+                    i++;
+                }
+                appendUtf8(codePoint, sb);
+            }
+        }
+    }
+
+    private static void appendUtf8(int codePoint, StringBuilder sb) {
+        if (codePoint < 0x800) {
+            appendOctet(0xC0 | (codePoint >> 6), sb);
+            appendOctet(0x80 | (codePoint & 0x3F), sb);
+        } else if (codePoint < 0x10000) {
+            if (Character.isSurrogate((char) codePoint)) {
+                // unpaired surrogate, String.getBytes(UTF_8) replaces it with '?'
+                appendOctet('?', sb);
+                return;
+            }
+            appendOctet(0xE0 | (codePoint >> 12), sb);
+            appendOctet(0x80 | ((codePoint >> 6) & 0x3F), sb);
+            appendOctet(0x80 | (codePoint & 0x3F), sb);
+        } else {
+            appendOctet(0xF0 | (codePoint >> 18), sb);
+            appendOctet(0x80 | ((codePoint >> 12) & 0x3F), sb);
+            appendOctet(0x80 | ((codePoint >> 6) & 0x3F), sb);
+            appendOctet(0x80 | (codePoint & 0x3F), sb);
+        }
+    }
+
+    private static void appendOctet(int octet, StringBuilder sb) {
+        sb.append('%').append(HEX[(octet >> 4) & 0xF]).append(HEX[octet & 0xF]);
+    }
+}
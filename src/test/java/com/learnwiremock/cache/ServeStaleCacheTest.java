@@ -0,0 +1,113 @@
+package com.learnwiremock.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServeStaleCacheTest {
+
+    private static final UnaryOperator<List<String>> COPY = ArrayList::new;
+
+    @Test
+    void requiresRequestTimeout() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ServeStaleCache(Duration.ZERO, Duration.ofMinutes(1), null, 10));
+    }
+
+    @Test
+    void evictsOldestEntriesBeyondMaxEntries() {
+        ServeStaleCache cache = new ServeStaleCache(Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofSeconds(1), 2);
+
+        cache.get("a", Mono.just(Arrays.asList("a")), COPY);
+        cache.get("b", Mono.just(Arrays.asList("b")), COPY);
+        cache.get("c", Mono.just(Arrays.asList("c")), COPY);
+
+        assertEquals(2, cache.size());
+        assertEquals(Arrays.asList("changed"), cache.get("a", Mono.just(Arrays.asList("changed")), COPY).getValue());
+    }
+
+    @Test
+    void dropsEntriesPastHardTtl() throws InterruptedException {
+        ServeStaleCache cache = new ServeStaleCache(Duration.ZERO, Duration.ofMillis(100), Duration.ofSeconds(1), 10);
+        cache.get("a", Mono.just(Arrays.asList("a")), COPY);
+        Thread.sleep(150);
+
+        cache.get("b", Mono.just(Arrays.asList("b")), COPY);
+
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void callersGetTheirOwnCopies() {
+        ServeStaleCache cache = new ServeStaleCache(Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofSeconds(1), 10);
+        cache.get("a", Mono.just(new ArrayList<>(Arrays.asList("a"))), COPY).getValue().add("mutated");
+
+        Cached<List<String>> cached = cache.get("a", Mono.error(new IllegalStateException()), COPY);
+        cached.getValue().add("mutated again");
+
+        assertFalse(cached.isStale());
+        assertEquals(Arrays.asList("a"), cache.get("a", Mono.error(new IllegalStateException()), COPY).getValue());
+    }
+
+    @Test
+    void refreshesInBackgroundWithinSoftTtl() {
+        ServeStaleCache cache = new ServeStaleCache(Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofSeconds(1), 10);
+        cache.get("a", Mono.just(Arrays.asList("a")), COPY);
+        AtomicInteger refreshes = new AtomicInteger();
+
+        Cached<List<String>> cached = cache.get("a", Mono.fromCallable(() -> {
+            refreshes.incrementAndGet();
+            return Arrays.asList("b");
+        }), COPY);
+
+        assertEquals(Arrays.asList("a"), cached.getValue());
+        assertFalse(cached.isStale());
+        assertEquals(1, refreshes.get());
+        assertEquals(Arrays.asList("b"), cache.get("a", Mono.never(), COPY).getValue());
+    }
+
+    @Test
+    void returnsFreshValuePastSoftTtlWhenRequestSucceeds() {
+        ServeStaleCache cache = new ServeStaleCache(Duration.ZERO, Duration.ofMinutes(1), Duration.ofSeconds(1), 10);
+        cache.get("a", Mono.just(Arrays.asList("a")), COPY);
+
+        Cached<List<String>> cached = cache.get("a", Mono.just(Arrays.asList("b")), COPY);
+
+        assertFalse(cached.isStale());
+        assertEquals(Arrays.asList("b"), cached.getValue());
+        assertEquals(0, cache.getStaleServedCount());
+    }
+
+    @Test
+    void clientErrorsAreNotMaskedAndDropTheValue() {
+        ServeStaleCache cache = new ServeStaleCache(Duration.ZERO, Duration.ofMinutes(1), Duration.ofSeconds(1), 10);
+        cache.get("a", Mono.just(Arrays.asList("a")), COPY);
+        Mono<List<String>> notFound = Mono.error(WebClientResponseException.create(
+                HttpStatus.NOT_FOUND.value(), "Not Found", null, null, null));
+
+        assertThrows(WebClientResponseException.class, () -> cache.get("a", notFound, COPY));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void flagsStaleValueWhenRequestFailsBeforeHardTtl() {
+        ServeStaleCache cache = new ServeStaleCache(Duration.ZERO, Duration.ofMinutes(1), Duration.ofSeconds(1), 10);
+        assertFalse(cache.get("a", Mono.just(Arrays.asList("a")), COPY).isStale());
+
+        Cached<List<String>> cached = cache.get("a", Mono.error(new IllegalStateException()), COPY);
+
+        assertTrue(cached.isStale());
+        assertEquals(Arrays.asList("a"), cached.getValue());
+        assertEquals(1, cache.getStaleServedCount());
+    }
+}
@@ -0,0 +1,128 @@
+package com.learnwiremock.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EndpointTest {
+
+    private static final long BASE_EJECTION = TimeUnit.SECONDS.toNanos(10);
+    private static final long MAX_EJECTION = TimeUnit.MINUTES.toNanos(2);
+
+    Endpoint endpoint = new Endpoint(URI.create("http://localhost:8081"));
+
+    @Test
+    void concurrentFailuresEjectOnceWithBaseBackOff() {
+        long now = System.nanoTime();
+        List<Endpoint.Permit> inFlight = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            inFlight.add(endpoint.tryAcquire(now));
+        }
+
+        for (Endpoint.Permit permit : inFlight) {
+            endpoint.onFailure(permit, 0, now, 1, BASE_EJECTION, MAX_EJECTION);
+        }
+
+        assertTrue(endpoint.isEjected());
+        assertEquals(now + BASE_EJECTION, endpoint.getEjectedUntilNanos());
+        assertEquals(0, endpoint.getOutstanding());
+    }
+
+    @Test
+    void lateSuccessDoesNotReadmitEjectedEndpoint() {
+        long now = System.nanoTime();
+        Endpoint.Permit slow = endpoint.tryAcquire(now);
+        Endpoint.Permit failing = endpoint.tryAcquire(now);
+
+        endpoint.onFailure(failing, 0, now, 1, BASE_EJECTION, MAX_EJECTION);
+        endpoint.onSuccess(slow, 0);
+
+        assertTrue(endpoint.isEjected());
+    }
+
+    @Test
+    void onlyOneProbeAfterBackOffAndOnlyItsFailureDoublesBackOff() {
+        long now = System.nanoTime();
+        Endpoint.Permit healthy = endpoint.tryAcquire(now);
+        Endpoint.Permit failing = endpoint.tryAcquire(now);
+        endpoint.onFailure(failing, 0, now, 1, BASE_EJECTION, MAX_EJECTION);
+
+        long afterBackOff = now + BASE_EJECTION;
+        assertNull(endpoint.tryAcquire(now));
+        Endpoint.Permit probe = endpoint.tryAcquire(afterBackOff);
+        assertTrue(probe.isProbe());
+        assertNull(endpoint.tryAcquire(afterBackOff));
+
+        // a request issued before the ejection neither frees the probe slot nor extends the back-off
+        endpoint.onFailure(healthy, 0, afterBackOff, 1, BASE_EJECTION, MAX_EJECTION);
+        assertNull(endpoint.tryAcquire(afterBackOff));
+        assertEquals(afterBackOff, endpoint.getEjectedUntilNanos());
+
+        endpoint.onFailure(probe, 0, afterBackOff, 1, BASE_EJECTION, MAX_EJECTION);
+        assertEquals(afterBackOff + 2 * BASE_EJECTION, endpoint.getEjectedUntilNanos());
+    }
+
+    @Test
+    void successfulProbeReadmitsEndpoint() {
+        long now = System.nanoTime();
+        endpoint.onFailure(endpoint.tryAcquire(now), 0, now, 1, BASE_EJECTION, MAX_EJECTION);
+
+        Endpoint.Permit probe = endpoint.tryAcquire(now + BASE_EJECTION);
+        endpoint.onSuccess(probe, 0);
+
+        assertFalse(endpoint.isEjected());
+        assertFalse(endpoint.tryAcquire(now + BASE_EJECTION).isProbe());
+    }
+
+    @Test
+    void failOpenRequestsDoNotChangeHealth() {
+        long now = System.nanoTime();
+        endpoint.onFailure(endpoint.tryAcquire(now), 0, now, 1, BASE_EJECTION, MAX_EJECTION);
+
+        endpoint.onFailure(endpoint.forceAcquire(), 0, now, 1, BASE_EJECTION, MAX_EJECTION);
+        endpoint.onSuccess(endpoint.forceAcquire(), 0);
+
+        assertTrue(endpoint.isEjected());
+        assertEquals(now + BASE_EJECTION, endpoint.getEjectedUntilNanos());
+    }
+
+    @Test
+    void failuresAreChargedAPenaltyLatency() {
+        long now = System.nanoTime();
+        endpoint.onSuccess(endpoint.tryAcquire(now), TimeUnit.MILLISECONDS.toNanos(5));
+
+        endpoint.onFailure(endpoint.tryAcquire(now), TimeUnit.MILLISECONDS.toNanos(1), now, 3, BASE_EJECTION, MAX_EJECTION);
+
+        assertTrue(endpoint.getEwmaLatencyMillis() > 250);
+    }
+
+    @Test
+    void cancelOnlyRaisesLatencyEstimate() {
+        long now = System.nanoTime();
+        endpoint.onSuccess(endpoint.tryAcquire(now), TimeUnit.MILLISECONDS.toNanos(100));
+
+        endpoint.onCancel(endpoint.tryAcquire(now), TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(100, endpoint.getEwmaLatencyMillis(), 0.001);
+
+        endpoint.onCancel(endpoint.tryAcquire(now), TimeUnit.MILLISECONDS.toNanos(900));
+        assertTrue(endpoint.getEwmaLatencyMillis() > 100);
+        assertEquals(0, endpoint.getOutstanding());
+    }
+
+    @Test
+    void outstandingRequestsCountOnceLatencyHasDecayed() {
+        long now = System.nanoTime();
+        endpoint.onSuccess(endpoint.tryAcquire(now), 0);
+        double idle = endpoint.cost(now);
+
+        endpoint.tryAcquire(now);
+
+        assertTrue(idle > 0);
+        assertTrue(endpoint.cost(now) > idle);
+    }
+}
@@ -0,0 +1,44 @@
+package com.learnwiremock.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadBalancingExchangeFilterTest {
+
+    LoadBalancingExchangeFilter filter = new LoadBalancingExchangeFilter(
+            Arrays.asList("http://localhost:8081", "http://localhost:8082"));
+
+    @Test
+    void concurrentBurstIsSpreadOverUnsampledReplica() {
+        Endpoint sampled = filter.getEndpoints().get(0);
+        Endpoint unsampled = filter.getEndpoints().get(1);
+        sampled.onSuccess(sampled.tryAcquire(System.nanoTime()), TimeUnit.MILLISECONDS.toNanos(10));
+
+        // none of these complete, so each choice sees the requests still in flight
+        for (int i = 0; i < 10; i++) {
+            assertFalse(filter.choose().isProbe());
+        }
+
+        assertEquals(5, sampled.getOutstanding());
+        assertEquals(5, unsampled.getOutstanding());
+    }
+
+    @Test
+    void concurrentBurstIsSpreadOverIdleReplicas() {
+        long now = System.nanoTime();
+        for (Endpoint endpoint : filter.getEndpoints()) {
+            endpoint.onSuccess(endpoint.tryAcquire(now), 0);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            filter.choose();
+        }
+
+        assertEquals(5, filter.getEndpoints().get(0).getOutstanding());
+        assertEquals(5, filter.getEndpoints().get(1).getOutstanding());
+    }
+}
@@ -0,0 +1,165 @@
+package com.learnwiremock.service;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.MappingBuilder;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.learnwiremock.cache.ServeStaleCache;
+import com.learnwiremock.constants.MoviesAppConstants;
+import com.learnwiremock.exception.MovieErrorResponse;
+import com.learnwiremock.loadbalancer.LoadBalancingExchangeFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoviesRestClientLoadBalancingTest {
+
+    WireMockServer fastServer1;
+    WireMockServer fastServer2;
+    WireMockServer slowServer;
+
+    @BeforeEach
+    void setUp() {
+        fastServer1 = new WireMockServer(wireMockConfig().dynamicPort());
+        fastServer2 = new WireMockServer(wireMockConfig().dynamicPort());
+        slowServer = new WireMockServer(wireMockConfig().dynamicPort());
+        fastServer1.start();
+        fastServer2.start();
+        slowServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fastServer1.stop();
+        fastServer2.stop();
+        slowServer.stop();
+    }
+
+    @Test
+    void trafficShiftsAwayFromSlowServer() {
+        fastServer1.stubFor(allMovies(10));
+        fastServer2.stubFor(allMovies(10));
+        slowServer.stubFor(allMovies(1000));
+        MoviesRestClient moviesRestClient = new MoviesRestClient(Arrays.asList(
+                baseUrl(fastServer1), baseUrl(fastServer2), baseUrl(slowServer)));
+
+        for (int i = 0; i < 30; i++) {
+            assertFalse(moviesRestClient.retriveAllMovies().isEmpty());
+        }
+
+        int slowCount = requestCount(slowServer);
+        int fastCount = requestCount(fastServer1) + requestCount(fastServer2);
+        System.out.println("fast: " + fastCount + ", slow: " + slowCount);
+        assertEquals(30, slowCount + fastCount);
+        assertTrue(slowCount <= 5);
+    }
+
+    @Test
+    void serverErrorsEjectTheReplica() {
+        fastServer1.stubFor(allMovies(0));
+        fastServer2.stubFor(allMovies(0));
+        slowServer.stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1))
+                .willReturn(serverError().withStatus(HttpStatus.SERVICE_UNAVAILABLE.value())));
+        MoviesRestClient moviesRestClient = new MoviesRestClient(loadBalancedWebClient(
+                new LoadBalancingExchangeFilter(Arrays.asList(baseUrl(fastServer1), baseUrl(fastServer2), baseUrl(slowServer)),
+                        1, Duration.ofMinutes(1), Duration.ofMinutes(1))));
+
+        int failures = 0;
+        for (int i = 0; i < 30; i++) {
+            try {
+                moviesRestClient.retriveAllMovies();
+            } catch (MovieErrorResponse e) {
+                failures++;
+            }
+        }
+
+        assertTrue(requestCount(slowServer) <= 1);
+        assertEquals(requestCount(slowServer), failures);
+    }
+
+    @Test
+    void ejectedReplicaIsReprobedAfterRecovery() throws InterruptedException {
+        fastServer1.stubFor(allMovies(0));
+        slowServer.stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1))
+                .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+        LoadBalancingExchangeFilter filter = new LoadBalancingExchangeFilter(
+                Arrays.asList(baseUrl(fastServer1), baseUrl(slowServer)),
+                1, Duration.ofMillis(200), Duration.ofMillis(200));
+        MoviesRestClient moviesRestClient = new MoviesRestClient(loadBalancedWebClient(filter));
+
+        for (int i = 0; i < 10; i++) {
+            try {
+                moviesRestClient.retriveAllMovies();
+            } catch (MovieErrorResponse e) {
+                // the first request to the faulty replica fails before it is ejected
+            }
+        }
+        assertTrue(filter.getEndpoints().get(1).isEjected());
+
+        slowServer.resetAll();
+        slowServer.stubFor(allMovies(0));
+        Thread.sleep(300);
+        for (int i = 0; i < 20; i++) {
+            assertFalse(moviesRestClient.retriveAllMovies().isEmpty());
+        }
+
+        assertFalse(filter.getEndpoints().get(1).isEjected());
+        assertTrue(requestCount(slowServer) > 0);
+    }
+
+    @Test
+    void hangingReplicaIsEjectedWhenCallersTimeOut() {
+        fastServer1.stubFor(allMovies(0));
+        slowServer.stubFor(allMovies(2000));
+        LoadBalancingExchangeFilter filter = new LoadBalancingExchangeFilter(
+                Arrays.asList(baseUrl(fastServer1), baseUrl(slowServer)),
+                1, Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofMillis(100));
+        // nothing is cached past the hard TTL of zero, so every read waits for the 300 ms request timeout
+        MoviesRestClient moviesRestClient = new MoviesRestClient(loadBalancedWebClient(filter),
+                new ServeStaleCache(Duration.ZERO, Duration.ZERO, Duration.ofMillis(300), 10));
+
+        int failures = 0;
+        for (int i = 0; i < 10; i++) {
+            try {
+                moviesRestClient.retriveAllMovies();
+            } catch (MovieErrorResponse e) {
+                failures++;
+            }
+        }
+
+        assertTrue(filter.getEndpoints().get(1).isEjected());
+        assertEquals(1, failures);
+    }
+
+    private static MappingBuilder allMovies(int delayMillis) {
+        return get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1))
+                .willReturn(WireMock.aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withFixedDelay(delayMillis)
+                        .withBodyFile("allmovies.json"));
+    }
+
+    private static WebClient loadBalancedWebClient(LoadBalancingExchangeFilter filter) {
+        return WebClient.builder().filter(filter).build();
+    }
+
+    private static String baseUrl(WireMockServer server) {
+        return String.format("http://localhost:%s", server.port());
+    }
+
+    private static int requestCount(WireMockServer server) {
+        return server.findAll(getRequestedFor(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1))).size();
+    }
+}
@@ -0,0 +1,268 @@
+package com.learnwiremock.service;
+
+import com.github.jenspiegsa.wiremockextension.ConfigureWireMock;
+import com.github.jenspiegsa.wiremockextension.InjectServer;
+import com.github.jenspiegsa.wiremockextension.WireMockExtension;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.common.ConsoleNotifier;
+import com.github.tomakehurst.wiremock.core.Options;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.learnwiremock.cache.Cached;
+import com.learnwiremock.cache.ServeStaleCache;
+import com.learnwiremock.constants.MoviesAppConstants;
+import com.learnwiremock.dto.Movie;
+import com.learnwiremock.exception.MovieErrorResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(WireMockExtension.class)
+public class MoviesRestClientServeStaleTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(2);
+
+    private static final String MOVIE_JSON =
+            "{\"movie_id\":1,\"name\":\"Batman Begins\",\"year\":2005,\"cast\":\"Christian Bale\",\"release_date\":\"2005-06-15\"}";
+
+    @InjectServer
+    WireMockServer wireMockServer;
+
+    @ConfigureWireMock
+    Options options = wireMockConfig()
+            .port(8088)
+            .notifier(new ConsoleNotifier(true));
+
+    @Test
+    void retrieveAllMovies_healthyBackendPastSoftTtlReturnsFreshData() {
+        ServeStaleCache serveStaleCache = new ServeStaleCache(Duration.ZERO, Duration.ofMinutes(1), TIMEOUT, 100);
+        MoviesRestClient moviesRestClient = moviesRestClient(serveStaleCache);
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1)).willReturn(allMovies()));
+        List<Movie> movieList = moviesRestClient.retriveAllMovies();
+
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1))
+                .willReturn(WireMock.aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBody("[" + MOVIE_JSON + "]")));
+
+        Cached<List<Movie>> cached = moviesRestClient.retriveAllMoviesCached();
+        assertFalse(cached.isStale());
+        assertEquals(1, cached.getValue().size());
+        assertNotEquals(movieList, cached.getValue());
+        assertEquals(0, serveStaleCache.getStaleServedCount());
+        verify(exactly(2), getRequestedFor(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1)));
+    }
+
+    @Test
+    void retrieveAllMovies_servesStaleOn503() {
+        ServeStaleCache serveStaleCache = new ServeStaleCache(Duration.ZERO, Duration.ofMinutes(1), TIMEOUT, 100);
+        MoviesRestClient moviesRestClient = moviesRestClient(serveStaleCache);
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1)).willReturn(allMovies()));
+        List<Movie> movieList = moviesRestClient.retriveAllMovies();
+
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1))
+                .willReturn(serverError().withStatus(HttpStatus.SERVICE_UNAVAILABLE.value())));
+
+        Cached<List<Movie>> cached = moviesRestClient.retriveAllMoviesCached();
+        assertTrue(cached.isStale());
+        assertEquals(movieList, cached.getValue());
+        assertEquals(1, serveStaleCache.getStaleServedCount());
+        verify(exactly(2), getRequestedFor(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1)));
+        // the failed request keeps the stale value
+        assertEquals(movieList, moviesRestClient.retriveAllMovies());
+    }
+
+    @Test
+    void retrieveMovieByNameCached_flagsStaleResponseOnFault() {
+        ServeStaleCache serveStaleCache = new ServeStaleCache(Duration.ZERO, Duration.ofMinutes(1), TIMEOUT, 100);
+        MoviesRestClient moviesRestClient = moviesRestClient(serveStaleCache);
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.MOVIE_BY_NAME_QUERY_PARAM_V1))
+                .withQueryParam("movie_name", equalTo("Avengers"))
+                .willReturn(WireMock.aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("avengers.json")));
+        Cached<List<Movie>> fresh = moviesRestClient.retrieveMovieByNameCached("Avengers");
+        assertFalse(fresh.isStale());
+
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.MOVIE_BY_NAME_QUERY_PARAM_V1))
+                .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+
+        Cached<List<Movie>> stale = moviesRestClient.retrieveMovieByNameCached("Avengers");
+        assertTrue(stale.isStale());
+        assertEquals(fresh.getValue(), stale.getValue());
+        verify(exactly(2), getRequestedFor(urlPathEqualTo(MoviesAppConstants.MOVIE_BY_NAME_QUERY_PARAM_V1)));
+    }
+
+    @Test
+    void retrieveMovieByYearCached_flagsStaleResponseOn503() {
+        ServeStaleCache serveStaleCache = new ServeStaleCache(Duration.ZERO, Duration.ofMinutes(1), TIMEOUT, 100);
+        MoviesRestClient moviesRestClient = moviesRestClient(serveStaleCache);
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.MOVIE_BY_YEAR_QUERY_PARAM_V1))
+                .withQueryParam("year", equalTo("2012"))
+                .willReturn(WireMock.aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBody("[" + MOVIE_JSON + "]")));
+        List<Movie> movieList = moviesRestClient.retrieveMovieByYear(2012);
+
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.MOVIE_BY_YEAR_QUERY_PARAM_V1))
+                .willReturn(serverError().withStatus(HttpStatus.SERVICE_UNAVAILABLE.value())));
+
+        Cached<List<Movie>> stale = moviesRestClient.retrieveMovieByYearCached(2012);
+        assertTrue(stale.isStale());
+        assertEquals(movieList, stale.getValue());
+    }
+
+    @Test
+    void retrieveMovieByIdCached_slowBackendFallsBackAfterRequestTimeout() {
+        ServeStaleCache serveStaleCache = new ServeStaleCache(Duration.ZERO, Duration.ofMinutes(1), Duration.ofMillis(300), 100);
+        MoviesRestClient moviesRestClient = moviesRestClient(serveStaleCache);
+        stubFor(get(urlPathEqualTo("/movieservice/v1/movie/2"))
+                .willReturn(WireMock.aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("movie.json")));
+        Movie movie = moviesRestClient.retriveMovieById(2);
+
+        stubFor(get(urlPathEqualTo("/movieservice/v1/movie/2"))
+                .willReturn(ok().withFixedDelay(3000)));
+
+        long start = System.nanoTime();
+        Cached<Movie> stale = moviesRestClient.retriveMovieByIdCached(2);
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2000);
+        assertTrue(stale.isStale());
+        assertEquals(movie, stale.getValue());
+    }
+
+    @Test
+    void retrieveMovieById_withinSoftTtlSlowBackendDoesNotDelayResponse() {
+        ServeStaleCache serveStaleCache = new ServeStaleCache(Duration.ofMinutes(1), Duration.ofMinutes(5), TIMEOUT, 100);
+        MoviesRestClient moviesRestClient = moviesRestClient(serveStaleCache);
+        stubFor(get(urlPathEqualTo("/movieservice/v1/movie/2"))
+                .willReturn(WireMock.aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("movie.json")));
+        Movie movie = moviesRestClient.retriveMovieById(2);
+
+        stubFor(get(urlPathEqualTo("/movieservice/v1/movie/2"))
+                .willReturn(ok().withFixedDelay(3000)));
+
+        long start = System.nanoTime();
+        Cached<Movie> cached = moviesRestClient.retriveMovieByIdCached(2);
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 500);
+        assertFalse(cached.isStale());
+        assertEquals(movie, cached.getValue());
+    }
+
+    @Test
+    void retrieveAllMovies_withinSoftTtlRefreshesOnceInBackground() throws InterruptedException {
+        ServeStaleCache serveStaleCache = new ServeStaleCache(Duration.ofMinutes(1), Duration.ofMinutes(5), TIMEOUT, 100);
+        MoviesRestClient moviesRestClient = moviesRestClient(serveStaleCache);
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1)).willReturn(allMovies()));
+        List<Movie> movieList = moviesRestClient.retriveAllMovies();
+
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1)).willReturn(allMovies().withFixedDelay(300)));
+        assertEquals(movieList, moviesRestClient.retriveAllMovies());
+        assertEquals(movieList, moviesRestClient.retriveAllMovies());
+        assertEquals(0, serveStaleCache.getStaleServedCount());
+
+        // both hits arrive while the first refresh is still in flight, so only one is sent
+        Thread.sleep(600);
+        verify(exactly(2), getRequestedFor(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1)));
+    }
+
+    @Test
+    void retrieveAllMovies_returnsCopiesOfCachedMovies() {
+        ServeStaleCache serveStaleCache = new ServeStaleCache(Duration.ofMinutes(1), Duration.ofMinutes(5), TIMEOUT, 100);
+        MoviesRestClient moviesRestClient = moviesRestClient(serveStaleCache);
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1)).willReturn(allMovies()));
+        List<Movie> movieList = moviesRestClient.retriveAllMovies();
+        String name = movieList.get(0).getName();
+
+        movieList.get(0).setName("changed by caller");
+        moviesRestClient.retriveAllMovies().clear();
+
+        assertEquals(name, moviesRestClient.retriveAllMovies().get(0).getName());
+    }
+
+    @Test
+    void retrieveAllMovies_beyondHardTtlThrows() throws InterruptedException {
+        ServeStaleCache serveStaleCache = new ServeStaleCache(Duration.ZERO, Duration.ofMillis(200), TIMEOUT, 100);
+        MoviesRestClient moviesRestClient = moviesRestClient(serveStaleCache);
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1)).willReturn(allMovies()));
+        moviesRestClient.retriveAllMovies();
+
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1))
+                .willReturn(serverError().withStatus(HttpStatus.SERVICE_UNAVAILABLE.value())));
+        Thread.sleep(300);
+
+        assertThrows(MovieErrorResponse.class, () -> moviesRestClient.retriveAllMovies());
+        assertEquals(0, serveStaleCache.getStaleServedCount());
+    }
+
+    @Test
+    void retrieveMovieById_notFoundIsNotMaskedAndDropsCachedMovie() {
+        ServeStaleCache serveStaleCache = new ServeStaleCache(Duration.ZERO, Duration.ofMinutes(1), TIMEOUT, 100);
+        MoviesRestClient moviesRestClient = moviesRestClient(serveStaleCache);
+        stubFor(get(urlPathEqualTo("/movieservice/v1/movie/2"))
+                .willReturn(WireMock.aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("movie.json")));
+        moviesRestClient.retriveMovieById(2);
+
+        stubFor(get(urlPathEqualTo("/movieservice/v1/movie/2"))
+                .willReturn(WireMock.aResponse()
+                        .withStatus(HttpStatus.NOT_FOUND.value())
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("404-movie_id.json")));
+
+        assertThrows(MovieErrorResponse.class, () -> moviesRestClient.retriveMovieById(2));
+        assertEquals(0, serveStaleCache.size());
+    }
+
+    @Test
+    void sharedCacheKeepsClientsOfDifferentBaseUrlsApart() {
+        ServeStaleCache serveStaleCache = new ServeStaleCache(Duration.ofMinutes(1), Duration.ofMinutes(5), TIMEOUT, 100);
+        stubFor(get(urlPathEqualTo("/movieservice/v1/movie/2"))
+                .willReturn(WireMock.aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("movie.json")));
+        MoviesRestClient localhostClient = moviesRestClient(serveStaleCache);
+        MoviesRestClient loopbackClient = new MoviesRestClient(
+                WebClient.create(String.format("http://127.0.0.1:%s/", wireMockServer.port())), serveStaleCache);
+
+        localhostClient.retriveMovieById(2);
+        loopbackClient.retriveMovieById(2);
+
+        assertEquals(2, serveStaleCache.size());
+        verify(exactly(2), getRequestedFor(urlPathEqualTo("/movieservice/v1/movie/2")));
+    }
+
+    private MoviesRestClient moviesRestClient(ServeStaleCache serveStaleCache) {
+        WebClient webClient = WebClient.create(String.format("http://localhost:%s/", wireMockServer.port()));
+        return new MoviesRestClient(webClient, serveStaleCache);
+    }
+
+    private static ResponseDefinitionBuilder allMovies() {
+        return WireMock.aResponse()
+                .withStatus(HttpStatus.OK.value())
+                .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .withBodyFile("allmovies.json");
+    }
+}
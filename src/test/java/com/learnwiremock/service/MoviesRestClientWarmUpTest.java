@@ -0,0 +1,147 @@
+package com.learnwiremock.service;
+
+import com.github.jenspiegsa.wiremockextension.ConfigureWireMock;
+import com.github.jenspiegsa.wiremockextension.InjectServer;
+import com.github.jenspiegsa.wiremockextension.WireMockExtension;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.common.ConsoleNotifier;
+import com.github.tomakehurst.wiremock.core.Options;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.learnwiremock.constants.MoviesAppConstants;
+import com.learnwiremock.dto.Movie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(WireMockExtension.class)
+public class MoviesRestClientWarmUpTest {
+
+    ConnectionProvider coldConnectionProvider;
+    ConnectionProvider warmConnectionProvider;
+
+    @InjectServer
+    WireMockServer wireMockServer;
+
+    @ConfigureWireMock
+    Options options = wireMockConfig()
+            .port(8088)
+            .notifier(new ConsoleNotifier(true));
+
+    @BeforeEach
+    void setUp() {
+        coldConnectionProvider = ConnectionProvider.fixed("cold", 10);
+        warmConnectionProvider = ConnectionProvider.fixed("warm", 10);
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1))
+                .willReturn(WireMock.aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("allmovies.json")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        coldConnectionProvider.dispose();
+        warmConnectionProvider.dispose();
+    }
+
+    // latency figures come from FirstRequestBenchmark; these tests check what warm-up leaves behind
+    @Test
+    void firstRequestReusesWarmedUpConnection() {
+        AtomicInteger coldConnects = new AtomicInteger();
+        MoviesRestClient coldClient = new MoviesRestClient(webClient(coldConnectionProvider, coldConnects));
+        assertFirstRequestSucceeds(coldClient);
+        assertEquals(1, coldConnects.get());
+
+        AtomicInteger warmConnects = new AtomicInteger();
+        MoviesRestClient warmClient = new MoviesRestClient(webClient(warmConnectionProvider, warmConnects));
+        warmClient.warmUp(4);
+        int warmedUp = warmConnects.get();
+        assertFirstRequestSucceeds(warmClient);
+
+        assertTrue(warmedUp > 0);
+        assertEquals(warmedUp, warmConnects.get());
+        verify(exactly(1 + 4 + 1), getRequestedFor(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1)));
+    }
+
+    @Test
+    void plainTextHealthCheckLeavesPooledConnection() {
+        stubFor(get(urlPathEqualTo("/health"))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE)
+                        .withBody("UP")));
+        AtomicInteger connects = new AtomicInteger();
+        MoviesRestClient moviesRestClient = new MoviesRestClient(webClient(warmConnectionProvider, connects));
+        moviesRestClient.warmUp(1, "/health");
+
+        assertFirstRequestSucceeds(moviesRestClient);
+
+        assertEquals(1, connects.get());
+    }
+
+    @Test
+    void warmUpWithoutHealthRequest() {
+        MoviesRestClient moviesRestClient = new MoviesRestClient(webClient(warmConnectionProvider));
+        moviesRestClient.warmUp(4, null);
+
+        verify(exactly(0), getRequestedFor(anyUrl()));
+    }
+
+    @Test
+    void warmUpToleratesFailingBackend() {
+        stubFor(get(urlPathEqualTo(MoviesAppConstants.GET_ALL_MOVIES_V1))
+                .willReturn(aResponse().withFault(Fault.EMPTY_RESPONSE)));
+        MoviesRestClient moviesRestClient = new MoviesRestClient(webClient(warmConnectionProvider));
+
+        assertDoesNotThrow(() -> moviesRestClient.warmUp(2));
+    }
+
+    @Test
+    void warmUpToleratesMalformedPath() {
+        MoviesRestClient moviesRestClient = new MoviesRestClient(webClient(warmConnectionProvider));
+
+        assertDoesNotThrow(() -> moviesRestClient.warmUp(2, "http://[malformed"));
+    }
+
+    private void assertFirstRequestSucceeds(MoviesRestClient moviesRestClient) {
+        List<Movie> movieList = moviesRestClient.retriveAllMovies();
+        assertFalse(movieList.isEmpty());
+    }
+
+    private WebClient webClient(ConnectionProvider connectionProvider) {
+        return webClient(connectionProvider, new AtomicInteger());
+    }
+
+    /**
+     * Counts new connections; a connection taken from the pool is reported as ACQUIRED instead.
+     */
+    private WebClient webClient(ConnectionProvider connectionProvider, AtomicInteger connects) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .observe((connection, state) -> {
+                    if (state == ConnectionObserver.State.CONNECTED) {
+                        connects.incrementAndGet();
+                    }
+                });
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .baseUrl(String.format("http://localhost:%s", wireMockServer.port()))
+                .build();
+    }
+}
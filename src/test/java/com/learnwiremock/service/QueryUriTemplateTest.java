@@ -0,0 +1,50 @@
+package com.learnwiremock.service;
+
+import com.learnwiremock.constants.MoviesAppConstants;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.util.UriUtils;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class QueryUriTemplateTest {
+
+    QueryUriTemplate movieByName = new QueryUriTemplate(MoviesAppConstants.MOVIE_BY_NAME_QUERY_PARAM_V1, "movie_name");
+
+    @Test
+    void encodesSpacesInMovieNames() {
+        URI uri = movieByName.expand("http://localhost:8088", "Toy Story");
+        assertEquals("http://localhost:8088/movieservice/v1/movieName?movie_name=Toy%20Story", uri.toString());
+    }
+
+    @Test
+    void expandsRelativeUriWithoutBase() {
+        URI uri = movieByName.expand("", "Avengers");
+        assertEquals("/movieservice/v1/movieName?movie_name=Avengers", uri.toString());
+    }
+
+    @Test
+    void encodesReservedCharactersInValues() {
+        assertEquals("/movieservice/v1/movieName?movie_name=1%2B1%3D2", movieByName.expand("", "1+1=2").toString());
+        assertEquals("/movieservice/v1/movieName?movie_name=Fast%20%26%20Furious",
+                movieByName.expand("", "Fast & Furious").toString());
+    }
+
+    @Test
+    void encodesTheSameWayAsUriUtils() {
+        String[] names = {"Toy Story", "Batman Begins", "Fast & Furious", "1+1=2", "Am\u00e9lie", "\u5343\u3068\u5343\u5c0b",
+                "50% Off", "What?/Why:@", "Emoji \uD83C\uDFAC", "#hashtag", "a-b.c_d~e"};
+        for (String name : names) {
+            String expected = "/movieservice/v1/movieName?movie_name=" + UriUtils.encode(name, StandardCharsets.UTF_8);
+            assertEquals(expected, movieByName.expand("", name).toString(), name);
+        }
+    }
+
+    @Test
+    void expandsNumericParameters() {
+        QueryUriTemplate movieByYear = new QueryUriTemplate(MoviesAppConstants.MOVIE_BY_YEAR_QUERY_PARAM_V1, "year");
+        assertEquals("/movieservice/v1/movieYear?year=2012", movieByYear.expand("", 2012).toString());
+    }
+}